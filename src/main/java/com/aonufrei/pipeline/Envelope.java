@@ -0,0 +1,23 @@
+package com.aonufrei.pipeline;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Element travelling between stages together with the time it entered the pipeline
+ */
+final class Envelope {
+
+	static final Envelope END = new Envelope(null, 0);
+
+	static final List<Envelope> END_BATCH = Collections.singletonList(END);
+
+	final Object value;
+
+	final long ingestNanos;
+
+	Envelope(Object value, long ingestNanos) {
+		this.value = value;
+		this.ingestNanos = ingestNanos;
+	}
+}
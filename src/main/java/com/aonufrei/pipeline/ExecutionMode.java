@@ -0,0 +1,54 @@
+package com.aonufrei.pipeline;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Defines on which kind of threads the stages of a {@link Pipeline} are executed
+ */
+public enum ExecutionMode {
+
+	/**
+	 * Every stage gets its own thread from a fixed pool of platform threads. Good for CPU-bound stages
+	 */
+	PLATFORM,
+
+	/**
+	 * Every stage runs on a virtual thread. Good for I/O-bound stages. Virtual threads appeared in JDK 21, so on
+	 * older runtimes this mode falls back to a cached pool of platform threads
+	 */
+	VIRTUAL;
+
+	private static final Method VIRTUAL_EXECUTOR_FACTORY = findVirtualExecutorFactory();
+
+	/**
+	 * @return true if the current runtime can execute stages on virtual threads
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		return VIRTUAL_EXECUTOR_FACTORY != null;
+	}
+
+	ExecutorService newExecutor(int stages) {
+		if (this == VIRTUAL && VIRTUAL_EXECUTOR_FACTORY != null) {
+			try {
+				return (ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException("Cannot create virtual thread executor", e);
+			}
+		}
+		if (this == VIRTUAL) {
+			return Executors.newCachedThreadPool();
+		}
+		return Executors.newFixedThreadPool(stages);
+	}
+
+	private static Method findVirtualExecutorFactory() {
+		try {
+			// looked up reflectively, so the project still compiles for Java 8
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
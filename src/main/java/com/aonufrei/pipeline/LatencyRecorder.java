@@ -0,0 +1,43 @@
+package com.aonufrei.pipeline;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latest latency samples in a fixed size ring buffer, so recording does not allocate
+ */
+class LatencyRecorder {
+
+	private final long[] samples;
+
+	private long count;
+
+	private long max;
+
+	LatencyRecorder(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Latency samples capacity must be positive");
+		}
+		this.samples = new long[capacity];
+	}
+
+	synchronized void record(long nanos) {
+		samples[(int) (count % samples.length)] = nanos;
+		count++;
+		max = Math.max(max, nanos);
+	}
+
+	synchronized LatencySnapshot snapshot() {
+		int size = (int) Math.min(count, samples.length);
+		if (size == 0) {
+			return new LatencySnapshot(0, 0, 0, 0, 0);
+		}
+		long[] sorted = Arrays.copyOf(samples, size);
+		Arrays.sort(sorted);
+		return new LatencySnapshot(count, percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), max);
+	}
+
+	private static long percentile(long[] sorted, int percent) {
+		int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+		return sorted[Math.max(rank - 1, 0)];
+	}
+}
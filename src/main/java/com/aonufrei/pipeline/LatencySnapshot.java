@@ -0,0 +1,21 @@
+package com.aonufrei.pipeline;
+
+import lombok.Value;
+
+/**
+ * End-to-end latency of the pipeline elements in nanoseconds. Percentiles are calculated over the latest samples,
+ * count and max cover the whole run
+ */
+@Value
+public class LatencySnapshot {
+
+	long count;
+
+	long p50;
+
+	long p95;
+
+	long p99;
+
+	long max;
+}
@@ -0,0 +1,17 @@
+package com.aonufrei.pipeline;
+
+import java.util.function.Consumer;
+
+/**
+ * Transformation performed by a single stage. One input element may produce zero, one or many output elements
+ */
+interface Operator<I, O> {
+
+	void apply(I item, Consumer<O> downstream);
+
+	/**
+	 * Called once when there are no more input elements, so stateful operators can emit what they have buffered
+	 */
+	default void complete(Consumer<O> downstream) {
+	}
+}
@@ -0,0 +1,160 @@
+package com.aonufrei.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * Push-based alternative to {@link Stream} for elements that keep arriving, e.g. a feed of sold tickets.
+ * It supports the same operators, but every operator runs as a separate stage on its own thread, and stages are
+ * connected with bounded queues. The pipeline description is immutable, every operator returns a new pipeline.
+ *
+ * @param <S> type of the elements submitted to the pipeline
+ * @param <T> type of the elements produced by the pipeline
+ */
+public class Pipeline<S, T> {
+
+	/**
+	 * Operators may keep state (e.g. the current window), so every start creates its own instances
+	 */
+	private final List<Supplier<Operator<Object, Object>>> operators;
+
+	private Pipeline(List<Supplier<Operator<Object, Object>>> operators) {
+		this.operators = operators;
+	}
+
+	public static <S> Pipeline<S, S> create() {
+		return new Pipeline<>(Collections.emptyList());
+	}
+
+	/**
+	 * Same as {@link Stream#filter(Predicate)}: passes only the elements matching the predicate
+	 */
+	public Pipeline<S, T> filter(Predicate<? super T> predicate) {
+		return then((T item, Consumer<T> downstream) -> {
+			if (predicate.test(item)) {
+				downstream.accept(item);
+			}
+		});
+	}
+
+	/**
+	 * Same as {@link Stream#map(Function)}: converts every element
+	 */
+	public <R> Pipeline<S, R> map(Function<? super T, ? extends R> mapper) {
+		return then((T item, Consumer<R> downstream) -> downstream.accept(mapper.apply(item)));
+	}
+
+	/**
+	 * Same as {@link Stream#flatMap(Function)}: converts every element into a stream and passes all its elements
+	 */
+	public <R> Pipeline<S, R> flatMap(Function<? super T, ? extends Stream<? extends R>> mapper) {
+		return then((T item, Consumer<R> downstream) -> {
+			try (Stream<? extends R> stream = mapper.apply(item)) {
+				if (stream != null) {
+					stream.forEach(downstream);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Splits elements into tumbling windows of the given size and collects every window with the collector, e.g.
+	 * {@code Collectors.summarizingInt(Ticket::getPrice)}. The last window is emitted when the pipeline is closed,
+	 * even if it is not full
+	 */
+	public <A, R> Pipeline<S, R> window(int size, Collector<? super T, A, R> collector) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Window size must be positive");
+		}
+		Supplier<A> supplier = collector.supplier();
+		BiConsumer<A, ? super T> accumulator = collector.accumulator();
+		Function<A, R> finisher = collector.finisher();
+		return thenStateful(() -> new Operator<T, R>() {
+
+			private A container;
+
+			private int count;
+
+			@Override
+			public void apply(T item, Consumer<R> downstream) {
+				if (container == null) {
+					container = supplier.get();
+				}
+				accumulator.accept(container, item);
+				if (++count == size) {
+					complete(downstream);
+				}
+			}
+
+			@Override
+			public void complete(Consumer<R> downstream) {
+				if (count == 0) {
+					return;
+				}
+				R result = finisher.apply(container);
+				container = null;
+				count = 0;
+				downstream.accept(result);
+			}
+		});
+	}
+
+	/**
+	 * Starts the stages and returns the handle to submit elements to. The sink receives the pipeline results on
+	 * a separate stage, so slow sink also slows down the producers instead of growing the queues
+	 */
+	public RunningPipeline<S> start(PipelineConfig config, Consumer<? super T> sink) {
+		if (config.getQueueCapacity() <= 0 || config.getBatchSize() <= 0) {
+			throw new IllegalArgumentException("Queue capacity and batch size must be positive");
+		}
+		Pipeline<S, T> withSink = then((T item, Consumer<T> downstream) -> {
+			sink.accept(item);
+			downstream.accept(item);
+		});
+		List<Operator<Object, Object>> stages = new ArrayList<>();
+		for (Supplier<Operator<Object, Object>> factory : withSink.operators) {
+			stages.add(factory.get());
+		}
+
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		LatencyRecorder latencyRecorder = new LatencyRecorder(config.getLatencySamples());
+		ExecutorService executor = config.getExecutionMode().newExecutor(stages.size());
+
+		// producers submit single elements, stages hand over whole batches
+		BlockingQueue<List<Envelope>> head = new ArrayBlockingQueue<>(config.getQueueCapacity());
+		int batchesBetweenStages = Math.max(1, config.getQueueCapacity() / config.getBatchSize());
+		BlockingQueue<List<Envelope>> input = head;
+		for (int i = 0; i < stages.size(); i++) {
+			boolean last = i == stages.size() - 1;
+			BlockingQueue<List<Envelope>> output = last ? null : new ArrayBlockingQueue<>(batchesBetweenStages);
+			executor.execute(new Stage(input, output, stages.get(i), config.getBatchSize(), failure, latencyRecorder));
+			input = output;
+		}
+		executor.shutdown();
+		return new RunningPipeline<>(head, executor, failure, latencyRecorder, config.getCloseTimeout(),
+				config.getBatchSize());
+	}
+
+	private <R> Pipeline<S, R> then(Operator<T, R> operator) {
+		return thenStateful(() -> operator);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <R> Pipeline<S, R> thenStateful(Supplier<Operator<T, R>> factory) {
+		List<Supplier<Operator<Object, Object>>> next = new ArrayList<>(operators);
+		next.add(() -> (Operator<Object, Object>) (Operator<?, ?>) factory.get());
+		return new Pipeline<>(next);
+	}
+}
@@ -0,0 +1,49 @@
+package com.aonufrei.pipeline;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Settings of a running {@link Pipeline}
+ */
+@Value
+@Builder
+public class PipelineConfig {
+
+	/**
+	 * How many elements can wait between two stages. When the queue is full the upstream stage (or the producer)
+	 * is blocked until the downstream stage catches up, so memory usage stays bounded. Stages exchange batches,
+	 * so the queues between them hold {@code queueCapacity / batchSize} batches. The first queue holds
+	 * {@code queueCapacity} submissions, and a {@link RunningPipeline#submitAll} batch counts as one submission
+	 */
+	@Builder.Default
+	int queueCapacity = 1024;
+
+	/**
+	 * Maximum amount of elements a stage takes from its input queue at once and hands over to the next stage
+	 */
+	@Builder.Default
+	int batchSize = 64;
+
+	@Builder.Default
+	ExecutionMode executionMode = ExecutionMode.PLATFORM;
+
+	/**
+	 * How many latest latency samples are kept to calculate percentiles
+	 */
+	@Builder.Default
+	int latencySamples = 10_000;
+
+	/**
+	 * How long {@link RunningPipeline#close()} waits for the stages to drain their queues. After that the stages
+	 * are interrupted and the pipeline is reported as failed
+	 */
+	@Builder.Default
+	Duration closeTimeout = Duration.ofSeconds(30);
+
+	public static PipelineConfig defaults() {
+		return PipelineConfig.builder().build();
+	}
+}
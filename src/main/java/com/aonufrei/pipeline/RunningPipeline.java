@@ -0,0 +1,182 @@
+package com.aonufrei.pipeline;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Handle of a started {@link Pipeline}. Elements can be submitted from any thread until the pipeline is closed
+ *
+ * @param <S> type of the elements submitted to the pipeline
+ */
+public class RunningPipeline<S> implements AutoCloseable {
+
+	private final BlockingQueue<List<Envelope>> head;
+
+	private final ExecutorService executor;
+
+	private final AtomicReference<Throwable> failure;
+
+	private final LatencyRecorder latencyRecorder;
+
+	private final Duration closeTimeout;
+
+	private final int batchSize;
+
+	/**
+	 * Producers hold the read lock while they enqueue, close takes the write lock, so no element can be
+	 * enqueued after the end of the elements
+	 */
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+	private volatile boolean closed;
+
+	RunningPipeline(BlockingQueue<List<Envelope>> head, ExecutorService executor, AtomicReference<Throwable> failure,
+					LatencyRecorder latencyRecorder, Duration closeTimeout, int batchSize) {
+		this.head = head;
+		this.executor = executor;
+		this.failure = failure;
+		this.latencyRecorder = latencyRecorder;
+		this.closeTimeout = closeTimeout;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Pushes the element to the pipeline. Blocks while the first queue is full (backpressure)
+	 */
+	public void submit(S item) throws InterruptedException {
+		closeLock.readLock().lockInterruptibly();
+		try {
+			checkOpen();
+			head.put(Collections.singletonList(new Envelope(item, System.nanoTime())));
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Pushes the elements to the pipeline in batches of at most {@code batchSize} elements, which is cheaper than
+	 * submitting them one by one. Blocks while the first queue is full (backpressure)
+	 */
+	public void submitAll(Collection<? extends S> items) throws InterruptedException {
+		closeLock.readLock().lockInterruptibly();
+		try {
+			checkOpen();
+			List<Envelope> batch = new ArrayList<>(Math.min(items.size(), batchSize));
+			long ingestNanos = System.nanoTime();
+			for (S item : items) {
+				batch.add(new Envelope(item, ingestNanos));
+				if (batch.size() == batchSize) {
+					head.put(batch);
+					checkOpen();
+					batch = new ArrayList<>(batchSize);
+					ingestNanos = System.nanoTime();
+				}
+			}
+			if (!batch.isEmpty()) {
+				head.put(batch);
+			}
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Pushes the element to the pipeline waiting for free space not longer than the timeout
+	 *
+	 * @return false if the pipeline was still full after the timeout
+	 */
+	public boolean offer(S item, long timeout, TimeUnit unit) throws InterruptedException {
+		closeLock.readLock().lockInterruptibly();
+		try {
+			checkOpen();
+			return head.offer(Collections.singletonList(new Envelope(item, System.nanoTime())), timeout, unit);
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	public LatencySnapshot latency() {
+		return latencyRecorder.snapshot();
+	}
+
+	/**
+	 * Same as {@link #awaitCompletion()}, but an interrupt stops the stages and is reported as the failure. The
+	 * interrupt flag of the calling thread is kept
+	 *
+	 * @throws IllegalStateException if any stage has failed, the stages did not finish within the close timeout or
+	 *                               the calling thread was interrupted
+	 */
+	@Override
+	public void close() {
+		try {
+			awaitCompletion();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			abort(e);
+			throw new IllegalStateException("Pipeline has failed", failure.get());
+		}
+	}
+
+	/**
+	 * Waits until all submitted elements pass through the pipeline and stops its threads
+	 *
+	 * @throws IllegalStateException if any stage has failed or the stages did not finish within the close timeout
+	 */
+	public void awaitCompletion() throws InterruptedException {
+		long deadline = System.nanoTime() + closeTimeout.toNanos();
+		// producers blocked by a full pipeline keep the read lock, so the wait is bounded as well
+		if (!closeLock.writeLock().tryLock(closeTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+			abort();
+		} else {
+			try {
+				if (!closed) {
+					closed = true;
+					if (!head.offer(Envelope.END_BATCH, deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+						abort();
+					}
+				}
+			} finally {
+				closeLock.writeLock().unlock();
+			}
+		}
+		if (!executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+			abort();
+		}
+		Throwable cause = failure.get();
+		if (cause != null) {
+			throw new IllegalStateException("Pipeline has failed", cause);
+		}
+	}
+
+	private void abort() {
+		abort(new TimeoutException("Pipeline did not finish within " + closeTimeout));
+	}
+
+	private void abort(Throwable cause) {
+		closed = true;
+		failure.compareAndSet(null, cause);
+		// interrupted stages pass the end of the elements downstream and exit
+		executor.shutdownNow();
+		head.clear();
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Pipeline is closed");
+		}
+		Throwable cause = failure.get();
+		if (cause != null) {
+			throw new IllegalStateException("Pipeline has failed", cause);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.aonufrei.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Takes micro-batches of elements from the input queue, applies the operator and hands the results over to the
+ * output queue also in micro-batches, so the queue locks are taken once per batch instead of once per element.
+ * The last stage has no output queue and records the end-to-end latency instead
+ */
+class Stage implements Runnable {
+
+	private final BlockingQueue<List<Envelope>> input;
+
+	private final BlockingQueue<List<Envelope>> output;
+
+	private final Operator<Object, Object> operator;
+
+	private final int batchSize;
+
+	private final AtomicReference<Throwable> failure;
+
+	private final LatencyRecorder latencyRecorder;
+
+	private final Consumer<Object> downstream = this::emit;
+
+	private List<Envelope> pending;
+
+	private long currentIngestNanos;
+
+	Stage(BlockingQueue<List<Envelope>> input, BlockingQueue<List<Envelope>> output, Operator<Object, Object> operator,
+		  int batchSize, AtomicReference<Throwable> failure, LatencyRecorder latencyRecorder) {
+		this.input = input;
+		this.output = output;
+		this.operator = operator;
+		this.batchSize = batchSize;
+		this.failure = failure;
+		this.latencyRecorder = latencyRecorder;
+		this.pending = new ArrayList<>(batchSize);
+	}
+
+	@Override
+	public void run() {
+		List<List<Envelope>> batches = new ArrayList<>();
+		try {
+			boolean finished = false;
+			while (!finished) {
+				receive(batches);
+				for (List<Envelope> batch : batches) {
+					for (Envelope envelope : batch) {
+						if (envelope == Envelope.END) {
+							finished = true;
+							break;
+						}
+						// after a failure the stage keeps draining the input, so upstream never blocks forever
+						if (failure.get() == null) {
+							process(envelope);
+						}
+					}
+				}
+				batches.clear();
+				flush();
+			}
+			if (failure.get() == null) {
+				complete();
+				flush();
+			}
+		} catch (InterruptedException e) {
+			failure.compareAndSet(null, e);
+			Thread.currentThread().interrupt();
+		} finally {
+			finish();
+		}
+	}
+
+	/**
+	 * Waits for the first batch and takes the following ones while they are available, up to batchSize elements
+	 */
+	private void receive(List<List<Envelope>> batches) throws InterruptedException {
+		List<Envelope> batch = input.take();
+		batches.add(batch);
+		int received = batch.size();
+		while (received < batchSize && (batch = input.poll()) != null) {
+			batches.add(batch);
+			received += batch.size();
+		}
+	}
+
+	/**
+	 * Passes the end of the elements downstream, so the next stages finish even if this one has failed
+	 */
+	private void finish() {
+		if (output == null) {
+			return;
+		}
+		if (failure.get() == null) {
+			try {
+				output.put(Envelope.END_BATCH);
+				return;
+			} catch (InterruptedException e) {
+				failure.compareAndSet(null, e);
+				Thread.currentThread().interrupt();
+			}
+		}
+		// after a failure downstream discards everything it receives, so queued elements can be dropped
+		while (!output.offer(Envelope.END_BATCH)) {
+			output.poll();
+		}
+	}
+
+	private void process(Envelope envelope) {
+		currentIngestNanos = envelope.ingestNanos;
+		try {
+			operator.apply(envelope.value, downstream);
+		} catch (Throwable e) {
+			failure.compareAndSet(null, e);
+		}
+	}
+
+	private void complete() {
+		try {
+			operator.complete(downstream);
+		} catch (Throwable e) {
+			failure.compareAndSet(null, e);
+		}
+	}
+
+	private void emit(Object value) {
+		if (output == null) {
+			latencyRecorder.record(System.nanoTime() - currentIngestNanos);
+			return;
+		}
+		pending.add(new Envelope(value, currentIngestNanos));
+		if (pending.size() >= batchSize) {
+			try {
+				flush();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Pipeline stage was interrupted", e);
+			}
+		}
+	}
+
+	private void flush() throws InterruptedException {
+		if (output == null || pending.isEmpty()) {
+			return;
+		}
+		output.put(pending);
+		pending = new ArrayList<>(batchSize);
+	}
+}
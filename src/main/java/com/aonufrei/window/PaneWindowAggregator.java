@@ -0,0 +1,130 @@
+package com.aonufrei.window;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Aggregates timestamped int values (e.g. ticket prices) in time windows without keeping the values themselves.
+ * Time is split into panes of a fixed length, and count, sum, min and max of every pane are kept in primitive ring
+ * buffers. Adding a value is O(1), a window query merges only the panes it covers, so any tumbling or sliding
+ * window up to {@code paneMillis * panes} long can be queried at any time while values keep arriving.
+ */
+public class PaneWindowAggregator {
+
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private final long paneMillis;
+
+	private final int maxWindowPanes;
+
+	private final long[] paneIds;
+
+	private final long[] counts;
+
+	private final long[] sums;
+
+	private final int[] mins;
+
+	private final int[] maxs;
+
+	/**
+	 * @param paneLength the smallest window step, e.g. 1 minute
+	 * @param panes      the longest window in panes, e.g. 60 to be able to query the last hour. One more pane is
+	 *                   kept, because a sliding window that does not end on a pane boundary overlaps one more pane
+	 */
+	public PaneWindowAggregator(Duration paneLength, int panes) {
+		if (paneLength.toMillis() <= 0 || panes <= 0) {
+			throw new IllegalArgumentException("Pane length and amount of panes must be positive");
+		}
+		this.paneMillis = paneLength.toMillis();
+		this.maxWindowPanes = panes;
+		this.paneIds = new long[panes + 1];
+		this.counts = new long[panes + 1];
+		this.sums = new long[panes + 1];
+		this.mins = new int[panes + 1];
+		this.maxs = new int[panes + 1];
+		Arrays.fill(paneIds, EMPTY);
+	}
+
+	/**
+	 * Adds the value to the pane of the given time
+	 *
+	 * @return false if the value is too old, i.e. its pane was already reused for newer values
+	 */
+	public synchronized boolean add(long timestampMillis, int value) {
+		long paneId = Math.floorDiv(timestampMillis, paneMillis);
+		int index = index(paneId);
+		if (paneIds[index] > paneId) {
+			return false;
+		}
+		if (paneIds[index] != paneId) {
+			paneIds[index] = paneId;
+			counts[index] = 0;
+			sums[index] = 0;
+			mins[index] = Integer.MAX_VALUE;
+			maxs[index] = Integer.MIN_VALUE;
+		}
+		counts[index]++;
+		sums[index] += value;
+		mins[index] = Math.min(mins[index], value);
+		maxs[index] = Math.max(maxs[index], value);
+		return true;
+	}
+
+	/**
+	 * Aggregates the window of the given length that ends at the given time, e.g. sales in the last 5 minutes,
+	 * i.e. from {@code nowMillis - window} exclusive to {@code nowMillis} inclusive. The window is measured at pane
+	 * granularity: all panes overlapping it are merged, so unless the window ends on the last millisecond of a pane
+	 * the result also contains values up to one pane older than the window. Use panes clearly shorter than the
+	 * window when this matters
+	 */
+	public WindowStats sliding(long nowMillis, Duration window) {
+		panesIn(window);
+		long firstPane = Math.floorDiv(nowMillis - window.toMillis() + 1, paneMillis);
+		return aggregate(firstPane, Math.floorDiv(nowMillis, paneMillis));
+	}
+
+	/**
+	 * Aggregates the window of the given length that contains the given time. Windows are aligned to the epoch and
+	 * do not overlap, e.g. sales in the current hour from 10:00 to 11:00. The current window is not complete yet
+	 */
+	public WindowStats tumbling(long nowMillis, Duration window) {
+		long panes = panesIn(window);
+		long firstPane = Math.floorDiv(Math.floorDiv(nowMillis, paneMillis), panes) * panes;
+		return aggregate(firstPane, firstPane + panes - 1);
+	}
+
+	private synchronized WindowStats aggregate(long firstPane, long lastPane) {
+		long count = 0;
+		long sum = 0;
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (long paneId = firstPane; paneId <= lastPane; paneId++) {
+			int index = index(paneId);
+			if (paneIds[index] != paneId) {
+				continue;
+			}
+			count += counts[index];
+			sum += sums[index];
+			min = Math.min(min, mins[index]);
+			max = Math.max(max, maxs[index]);
+		}
+		return new WindowStats(count, sum, min, max);
+	}
+
+	private long panesIn(Duration window) {
+		long millis = window.toMillis();
+		if (millis <= 0 || millis % paneMillis != 0) {
+			throw new IllegalArgumentException("Window must be a positive multiple of the pane length");
+		}
+		long panes = millis / paneMillis;
+		if (panes > maxWindowPanes) {
+			throw new IllegalArgumentException("Window is longer than the kept panes");
+		}
+		return panes;
+	}
+
+	private int index(long paneId) {
+		return (int) Math.floorMod(paneId, (long) paneIds.length);
+	}
+}
@@ -0,0 +1,90 @@
+package com.aonufrei.window;
+
+import com.aonufrei.dto.Ticket;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Rolling metrics of ticket sales: sold count and revenue in total and per price tier. Replaces recalculating
+ * {@code summingInt}/{@code summarizingInt} over the whole ticket list for every window. Recording and queries
+ * share one lock, so the total and the tiers always agree
+ *
+ * @param <K> type of the price tier
+ */
+public class TicketSaleWindows<K> {
+
+	private final Duration paneLength;
+
+	private final int panes;
+
+	private final Function<? super Ticket, ? extends K> tier;
+
+	private final PaneWindowAggregator total;
+
+	private final Map<K, PaneWindowAggregator> byTier = new HashMap<>();
+
+	/**
+	 * @param tier defines the price tier of a ticket, e.g. {@link #priceRange(int)}. Must not return null. Every tier
+	 *             keeps its own ring buffers and tiers are never removed, so the tier function has to return a
+	 *             small fixed set of values rather than e.g. the raw price
+	 */
+	public TicketSaleWindows(Duration paneLength, int panes, Function<? super Ticket, ? extends K> tier) {
+		this.paneLength = paneLength;
+		this.panes = panes;
+		this.tier = tier;
+		this.total = new PaneWindowAggregator(paneLength, panes);
+	}
+
+	/**
+	 * Groups tickets into price ranges of the given width, e.g. with width 1000 prices 0-999 belong to tier 0,
+	 * prices 1000-1999 belong to tier 1000 and so on. Tickets without a price belong to tier 0
+	 */
+	public static Function<Ticket, Integer> priceRange(int width) {
+		if (width <= 0) {
+			throw new IllegalArgumentException("Price range width must be positive");
+		}
+		return ticket -> ticket.getPrice() == null ? 0 : Math.floorDiv(ticket.getPrice(), width) * width;
+	}
+
+	/**
+	 * Registers the sale of the ticket at the given time. Tickets without a price count as free
+	 *
+	 * @return false if the sale is older than the kept panes
+	 * @throws IllegalArgumentException if the tier of the ticket is null
+	 */
+	public synchronized boolean record(Ticket ticket, long soldAtMillis) {
+		K key = tier.apply(ticket);
+		if (key == null) {
+			throw new IllegalArgumentException("Price tier of the ticket " + ticket.getId() + " is null");
+		}
+		int price = ticket.getPrice() == null ? 0 : ticket.getPrice();
+		// every sale of the tier is also in the total, so when the total accepts the sale the tier accepts it too
+		if (!total.add(soldAtMillis, price)) {
+			return false;
+		}
+		byTier.computeIfAbsent(key, k -> new PaneWindowAggregator(paneLength, panes)).add(soldAtMillis, price);
+		return true;
+	}
+
+	public synchronized WindowStats sliding(long nowMillis, Duration window) {
+		return total.sliding(nowMillis, window);
+	}
+
+	public synchronized WindowStats tumbling(long nowMillis, Duration window) {
+		return total.tumbling(nowMillis, window);
+	}
+
+	public synchronized Map<K, WindowStats> slidingByTier(long nowMillis, Duration window) {
+		return byTier.entrySet().stream()
+				.collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().sliding(nowMillis, window)));
+	}
+
+	public synchronized Map<K, WindowStats> tumblingByTier(long nowMillis, Duration window) {
+		return byTier.entrySet().stream()
+				.collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().tumbling(nowMillis, window)));
+	}
+}
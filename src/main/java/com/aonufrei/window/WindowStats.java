@@ -0,0 +1,23 @@
+package com.aonufrei.window;
+
+import lombok.Value;
+
+/**
+ * Result of a window aggregation. Like {@link java.util.IntSummaryStatistics}, an empty window has
+ * {@code Integer.MAX_VALUE} as min and {@code Integer.MIN_VALUE} as max
+ */
+@Value
+public class WindowStats {
+
+	long count;
+
+	long sum;
+
+	int min;
+
+	int max;
+
+	public double getAverage() {
+		return count > 0 ? (double) sum / count : 0.0;
+	}
+}
@@ -0,0 +1,337 @@
+package com.aonufrei.pipeline;
+
+import com.aonufrei.dto.FamilyTicket;
+import com.aonufrei.dto.Ticket;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelineTest {
+
+	/**
+	 * Pipeline supports the same filter and map operators as the stream, but elements are pushed one by one
+	 * instead of being taken from a finished list
+	 */
+	@Test
+	public void testFilterAndMap() throws InterruptedException {
+		List<Ticket> tickets = IntStream.rangeClosed(1, 1000)
+				.mapToObj(i -> Ticket.builder().name("Ticket " + i).price(i).sold(i % 2 == 0).build())
+				.collect(Collectors.toList());
+
+		List<Integer> actual = new ArrayList<>();
+		try (RunningPipeline<Ticket> pipeline = Pipeline.<Ticket>create()
+				.filter(Ticket::getSold)
+				.map(Ticket::getPrice)
+				.start(PipelineConfig.defaults(), actual::add)) {
+			for (Ticket t : tickets) {
+				pipeline.submit(t);
+			}
+		}
+
+		List<Integer> expected = tickets.stream().filter(Ticket::getSold).map(Ticket::getPrice).collect(Collectors.toList());
+		assertEquals(expected, actual);
+	}
+
+	/**
+	 * submitAll pushes many elements at once, they are split into batches and keep their order
+	 */
+	@Test
+	public void testSubmitAll() throws InterruptedException {
+		List<Integer> nums = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+		PipelineConfig config = PipelineConfig.builder().queueCapacity(4).batchSize(64).build();
+
+		List<Integer> actual = new ArrayList<>();
+		RunningPipeline<Integer> pipeline = Pipeline.<Integer>create()
+				.filter(it -> it % 3 == 0)
+				.start(config, actual::add);
+		pipeline.submitAll(nums);
+		pipeline.close();
+
+		assertEquals(nums.stream().filter(it -> it % 3 == 0).collect(Collectors.toList()), actual);
+		assertEquals(actual.size(), pipeline.latency().getCount());
+		assertThrows(IllegalStateException.class, () -> pipeline.submitAll(nums));
+	}
+
+	/**
+	 * flatMap passes every element of the produced stream further, e.g. all members of the family tickets
+	 */
+	@Test
+	public void testFlatMap() throws InterruptedException {
+		List<FamilyTicket> tickets = Arrays.asList(
+				FamilyTicket.builder().name("Ticket 1").memberNames(Arrays.asList("John", "Jennifer")).sold(true).build(),
+				FamilyTicket.builder().name("Ticket 2").memberNames(Arrays.asList("Robert", "Mary")).sold(false).build(),
+				FamilyTicket.builder().name("Ticket 3").memberNames(Arrays.asList("William", "Barbara", "Lisa")).sold(true).build(),
+				FamilyTicket.builder().name("Ticket 4").memberNames(Collections.singletonList("Kevin")).sold(true).build()
+		);
+
+		List<String> actual = new ArrayList<>();
+		try (RunningPipeline<FamilyTicket> pipeline = Pipeline.<FamilyTicket>create()
+				.filter(FamilyTicket::getSold)
+				.flatMap(t -> t.getMemberNames().stream())
+				.start(PipelineConfig.defaults(), actual::add)) {
+			for (FamilyTicket t : tickets) {
+				pipeline.submit(t);
+			}
+		}
+
+		assertEquals(Arrays.asList("John", "Jennifer", "William", "Barbara", "Lisa", "Kevin"), actual);
+	}
+
+	/**
+	 * window collects every N elements with a regular collector. The last window is emitted on close even if it
+	 * is not full
+	 */
+	@Test
+	public void testWindowSummarizing() throws InterruptedException {
+		List<IntSummaryStatistics> actual = new ArrayList<>();
+		try (RunningPipeline<Ticket> pipeline = Pipeline.<Ticket>create()
+				.window(4, Collectors.summarizingInt(Ticket::getPrice))
+				.start(PipelineConfig.defaults(), actual::add)) {
+			for (int i = 1; i <= 10; i++) {
+				pipeline.submit(Ticket.builder().name("Ticket " + i).price(i * 100).build());
+			}
+		}
+
+		assertEquals(3, actual.size());
+		assertEquals(4, actual.get(0).getCount());
+		assertEquals(1000, actual.get(0).getSum());
+		assertEquals(4, actual.get(1).getCount());
+		assertEquals(800, actual.get(1).getMax());
+		assertEquals(2, actual.get(2).getCount());
+		assertEquals(1900, actual.get(2).getSum());
+	}
+
+	/**
+	 * Pipeline is only a description, so the same windowed pipeline can be started several times at once and every
+	 * run has its own windows
+	 */
+	@Test
+	public void testStartTwice() throws InterruptedException {
+		Pipeline<Integer, Long> counting = Pipeline.<Integer>create().window(1000, Collectors.counting());
+		List<Long> first = new CopyOnWriteArrayList<>();
+		List<Long> second = new CopyOnWriteArrayList<>();
+
+		RunningPipeline<Integer> p1 = counting.start(PipelineConfig.defaults(), first::add);
+		RunningPipeline<Integer> p2 = counting.start(PipelineConfig.defaults(), second::add);
+		for (int i = 0; i < 100_000; i++) {
+			p1.submit(i);
+			p2.submit(i);
+		}
+		p1.close();
+		p2.close();
+
+		assertEquals(Collections.nCopies(100, 1000L), first);
+		assertEquals(Collections.nCopies(100, 1000L), second);
+	}
+
+	/**
+	 * When the sink is slow the bounded queues fill up and offer cannot add more elements, so memory does not grow
+	 */
+	@Test
+	public void testBackpressure() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		PipelineConfig config = PipelineConfig.builder().queueCapacity(2).batchSize(1).build();
+
+		RunningPipeline<Integer> pipeline = Pipeline.<Integer>create()
+				.start(config, it -> {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+
+		int accepted = 0;
+		while (pipeline.offer(accepted, 50, TimeUnit.MILLISECONDS)) {
+			accepted++;
+		}
+		// one element is held by the blocked sink and the queue is full
+		assertEquals(3, accepted);
+
+		release.countDown();
+		pipeline.close();
+		assertEquals(3, pipeline.latency().getCount());
+	}
+
+	/**
+	 * Latency percentiles are collected for every element that reaches the sink
+	 */
+	@Test
+	public void testLatency() throws InterruptedException {
+		RunningPipeline<Integer> pipeline = Pipeline.<Integer>create()
+				.map(it -> it * 2)
+				.start(PipelineConfig.builder().latencySamples(100).build(), it -> {});
+		for (int i = 0; i < 1000; i++) {
+			pipeline.submit(i);
+		}
+		pipeline.close();
+
+		LatencySnapshot latency = pipeline.latency();
+		assertEquals(1000, latency.getCount());
+		assertTrue(latency.getP50() <= latency.getP95());
+		assertTrue(latency.getP95() <= latency.getP99());
+		assertTrue(latency.getP99() <= latency.getMax());
+	}
+
+	/**
+	 * VIRTUAL mode runs stages on virtual threads when the runtime supports them and on platform threads otherwise
+	 */
+	@Test
+	public void testVirtualExecutionMode() throws InterruptedException {
+		List<Boolean> threads = new CopyOnWriteArrayList<>();
+		PipelineConfig config = PipelineConfig.builder().executionMode(ExecutionMode.VIRTUAL).build();
+		try (RunningPipeline<Integer> pipeline = Pipeline.<Integer>create()
+				.start(config, it -> threads.add(isVirtual(Thread.currentThread())))) {
+			pipeline.submit(1);
+		}
+
+		assertEquals(1, threads.size());
+		assertEquals(ExecutionMode.isVirtualThreadsSupported(), threads.get(0));
+	}
+
+	/**
+	 * An exception in any stage is reported when the pipeline is closed
+	 */
+	@Test
+	public void testFailure() throws InterruptedException {
+		RunningPipeline<Integer> pipeline = Pipeline.<Integer>create()
+				.map(it -> 10 / it)
+				.start(PipelineConfig.defaults(), it -> {});
+		pipeline.submit(1);
+		pipeline.submit(0);
+
+		IllegalStateException e = assertThrows(IllegalStateException.class, pipeline::close);
+		assertInstanceOf(ArithmeticException.class, e.getCause());
+	}
+
+	/**
+	 * Errors are reported as well, and the stages after the failed one still finish, so producers are not blocked
+	 */
+	@Test
+	public void testErrorInSink() {
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			PipelineConfig config = PipelineConfig.builder().queueCapacity(2).batchSize(1).build();
+			RunningPipeline<Integer> pipeline = Pipeline.<Integer>create()
+					.map(it -> it + 1)
+					.start(config, it -> {
+						if (it == 2) {
+							throw new AssertionError("Sink has failed");
+						}
+					});
+			assertThrows(IllegalStateException.class, () -> {
+				for (int i = 0; i < 100; i++) {
+					pipeline.submit(i);
+				}
+			});
+
+			IllegalStateException e = assertThrows(IllegalStateException.class, pipeline::close);
+			assertInstanceOf(AssertionError.class, e.getCause());
+		});
+	}
+
+	/**
+	 * close waits for the stages not longer than the close timeout, then interrupts them and reports the failure
+	 */
+	@Test
+	public void testCloseTimeout() {
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			CountDownLatch release = new CountDownLatch(1);
+			PipelineConfig config = PipelineConfig.builder().closeTimeout(Duration.ofMillis(100)).build();
+			RunningPipeline<Integer> pipeline = Pipeline.<Integer>create()
+					.start(config, it -> {
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					});
+			pipeline.submit(1);
+
+			IllegalStateException e = assertThrows(IllegalStateException.class, pipeline::close);
+			assertInstanceOf(TimeoutException.class, e.getCause());
+		});
+	}
+
+	/**
+	 * Every element whose submit returned normally reaches the sink, even if the pipeline is closed concurrently.
+	 * Elements submitted after close are rejected
+	 */
+	@Test
+	public void testSubmitRacingWithClose() throws InterruptedException {
+		AtomicInteger received = new AtomicInteger();
+		AtomicInteger accepted = new AtomicInteger();
+		RunningPipeline<Integer> pipeline = Pipeline.<Integer>create()
+				.map(it -> it * 2)
+				.start(PipelineConfig.builder().queueCapacity(4).build(), it -> received.incrementAndGet());
+
+		ExecutorService producers = Executors.newFixedThreadPool(4);
+		for (int p = 0; p < 4; p++) {
+			producers.execute(() -> {
+				try {
+					for (int i = 0; i < 10_000; i++) {
+						pipeline.submit(i);
+						accepted.incrementAndGet();
+					}
+				} catch (IllegalStateException | InterruptedException e) {
+					// the pipeline was closed
+				}
+			});
+		}
+		Thread.sleep(10);
+		pipeline.close();
+		producers.shutdown();
+		assertTrue(producers.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertEquals(accepted.get(), received.get());
+		assertThrows(IllegalStateException.class, () -> pipeline.submit(1));
+	}
+
+	/**
+	 * close does not throw InterruptedException, an interrupt stops the pipeline and is reported as the failure
+	 */
+	@Test
+	public void testCloseInterrupted() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		RunningPipeline<Integer> pipeline = Pipeline.<Integer>create()
+				.start(PipelineConfig.defaults(), it -> {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+		pipeline.submit(1);
+
+		Thread.currentThread().interrupt();
+		IllegalStateException e = assertThrows(IllegalStateException.class, pipeline::close);
+		assertInstanceOf(InterruptedException.class, e.getCause());
+		assertTrue(Thread.interrupted());
+	}
+
+	private static boolean isVirtual(Thread thread) {
+		try {
+			// Thread.isVirtual appeared in JDK 21, so it is looked up reflectively like in ExecutionMode
+			return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+		} catch (NoSuchMethodException e) {
+			return false;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.aonufrei.window;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaneWindowAggregatorTest {
+
+	private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+	/**
+	 * sliding window covers the last N panes up to the given time, including the current one
+	 */
+	@Test
+	public void testSliding() {
+		PaneWindowAggregator aggregator = new PaneWindowAggregator(Duration.ofMinutes(1), 60);
+		aggregator.add(0, 100);
+		aggregator.add(3 * MINUTE + 10, 200);
+		aggregator.add(4 * MINUTE + 20, 300);
+		aggregator.add(4 * MINUTE + 30, 50);
+
+		long now = 5 * MINUTE - 1;
+
+		WindowStats lastMinute = aggregator.sliding(now, Duration.ofMinutes(1));
+		assertEquals(new WindowStats(2, 350, 50, 300), lastMinute);
+
+		WindowStats last5Minutes = aggregator.sliding(now, Duration.ofMinutes(5));
+		assertEquals(new WindowStats(4, 650, 50, 300), last5Minutes);
+
+		// the first sale leaves the 5 minute window when the time moves forward
+		assertEquals(3, aggregator.sliding(now + MINUTE, Duration.ofMinutes(5)).getCount());
+	}
+
+	/**
+	 * sliding window is measured from the given time, so it does not become empty at the start of every pane.
+	 * Between pane boundaries it also contains the older part of the first overlapped pane
+	 */
+	@Test
+	public void testSlidingAtPaneBoundary() {
+		PaneWindowAggregator aggregator = new PaneWindowAggregator(Duration.ofMinutes(1), 60);
+		aggregator.add(5 * MINUTE - 1, 100);
+
+		assertEquals(1, aggregator.sliding(5 * MINUTE, Duration.ofMinutes(1)).getCount());
+		assertEquals(1, aggregator.sliding(5 * MINUTE + 30_000, Duration.ofMinutes(1)).getCount());
+		assertEquals(0, aggregator.sliding(6 * MINUTE, Duration.ofMinutes(1)).getCount());
+		assertEquals(1, aggregator.sliding(60 * MINUTE, Duration.ofMinutes(60)).getCount());
+	}
+
+	/**
+	 * tumbling window is aligned to its length, so the windows do not overlap
+	 */
+	@Test
+	public void testTumbling() {
+		PaneWindowAggregator aggregator = new PaneWindowAggregator(Duration.ofMinutes(1), 60);
+		aggregator.add(4 * MINUTE, 100);
+		aggregator.add(5 * MINUTE, 200);
+		aggregator.add(9 * MINUTE, 300);
+
+		assertEquals(new WindowStats(2, 500, 200, 300), aggregator.tumbling(7 * MINUTE, Duration.ofMinutes(5)));
+		assertEquals(new WindowStats(1, 100, 100, 100), aggregator.tumbling(4 * MINUTE, Duration.ofMinutes(5)));
+	}
+
+	/**
+	 * Window results are the same as summarizingInt over the tickets sold in that window
+	 */
+	@Test
+	public void testMatchesSummarizing() {
+		PaneWindowAggregator aggregator = new PaneWindowAggregator(Duration.ofMinutes(1), 60);
+		List<Integer> prices = Arrays.asList(1000, 2000, 1500, 3000, 500, 2500);
+		for (int i = 0; i < prices.size(); i++) {
+			aggregator.add(i * MINUTE, prices.get(i));
+		}
+
+		IntSummaryStatistics expected = prices.stream().collect(Collectors.summarizingInt(it -> it));
+		WindowStats actual = aggregator.sliding(5 * MINUTE, Duration.ofMinutes(60));
+
+		assertEquals(expected.getCount(), actual.getCount());
+		assertEquals(expected.getSum(), actual.getSum());
+		assertEquals(expected.getMin(), actual.getMin());
+		assertEquals(expected.getMax(), actual.getMax());
+		assertEquals(expected.getAverage(), actual.getAverage());
+	}
+
+	/**
+	 * Panes are reused in a ring, so values older than the kept panes are rejected and old panes are not counted
+	 */
+	@Test
+	public void testRingReuse() {
+		PaneWindowAggregator aggregator = new PaneWindowAggregator(Duration.ofMinutes(1), 5);
+		assertTrue(aggregator.add(0, 100));
+		// 5 panes of window plus one spare pane are kept
+		assertTrue(aggregator.add(6 * MINUTE, 200));
+		assertFalse(aggregator.add(0, 300));
+
+		assertEquals(new WindowStats(1, 200, 200, 200), aggregator.sliding(6 * MINUTE, Duration.ofMinutes(5)));
+		assertEquals(new WindowStats(0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE),
+				aggregator.sliding(20 * MINUTE, Duration.ofMinutes(5)));
+		assertThrows(IllegalArgumentException.class, () -> aggregator.sliding(0, Duration.ofMinutes(6)));
+	}
+}
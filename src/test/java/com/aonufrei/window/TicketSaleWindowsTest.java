@@ -0,0 +1,54 @@
+package com.aonufrei.window;
+
+import com.aonufrei.dto.Ticket;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketSaleWindowsTest {
+
+	private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+	/**
+	 * TicketSaleWindows keeps sold count and revenue in total and per price range
+	 */
+	@Test
+	public void testTicketSaleWindows() {
+		TicketSaleWindows<Integer> windows = new TicketSaleWindows<>(Duration.ofMinutes(1), 60,
+				TicketSaleWindows.priceRange(1000));
+		windows.record(Ticket.builder().name("Ticket 1").price(1000).build(), 0);
+		windows.record(Ticket.builder().name("Ticket 2").price(2000).build(), 30 * MINUTE);
+		windows.record(Ticket.builder().name("Ticket 3").price(1500).build(), 58 * MINUTE);
+		windows.record(Ticket.builder().name("Ticket 4").price(1200).build(), 59 * MINUTE);
+		windows.record(Ticket.builder().name("Ticket 5").build(), 59 * MINUTE);
+
+		long now = 60 * MINUTE - 1;
+		assertEquals(2, windows.sliding(now, Duration.ofMinutes(1)).getCount());
+		assertEquals(2700, windows.sliding(now, Duration.ofMinutes(5)).getSum());
+		assertEquals(5700, windows.sliding(now, Duration.ofMinutes(60)).getSum());
+
+		Map<Integer, WindowStats> byTier = windows.slidingByTier(now, Duration.ofMinutes(60));
+		assertEquals(3, byTier.size());
+		assertEquals(new WindowStats(3, 3700, 1000, 1500), byTier.get(1000));
+		assertEquals(1, byTier.get(2000).getCount());
+		// the ticket without a price counts as free
+		assertEquals(new WindowStats(1, 0, 0, 0), byTier.get(0));
+		assertEquals(0, windows.slidingByTier(now, Duration.ofMinutes(5)).get(2000).getCount());
+	}
+
+	/**
+	 * A ticket without a tier is rejected before anything is counted, so the total and the tiers stay consistent
+	 */
+	@Test
+	public void testNullTierIsRejected() {
+		TicketSaleWindows<Integer> windows = new TicketSaleWindows<>(Duration.ofMinutes(1), 60, Ticket::getPrice);
+		Ticket free = Ticket.builder().name("Ticket 1").build();
+
+		assertThrows(IllegalArgumentException.class, () -> windows.record(free, 0));
+		assertEquals(0, windows.sliding(0, Duration.ofMinutes(1)).getCount());
+		assertTrue(windows.slidingByTier(0, Duration.ofMinutes(1)).isEmpty());
+	}
+}